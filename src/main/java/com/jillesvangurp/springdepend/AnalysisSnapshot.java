@@ -0,0 +1,201 @@
+package com.jillesvangurp.springdepend;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Immutable snapshot of a dependency analysis that can be queried cheaply and from many threads at once.
+ */
+public class AnalysisSnapshot {
+    private final Map<String, Set<String>> dependencies;
+    private final Map<String, Set<String>> dependents;
+    private final Map<String, Set<String>> cycles;
+    private final Map<String, Integer> layers;
+    private final Map<Integer, Set<String>> layerMembers;
+    private final String etag;
+
+    /**
+     * @param dependencies map of bean name to the names of the beans it depends on
+     * @param dependents map of bean name to the names of the beans depending on it
+     * @param cycles map of bean name to descriptions of the dependency cycles it is part of
+     * @param layers bean layers as returned by {@link SimpleGraph#getLayers()}
+     */
+    public AnalysisSnapshot(Map<String, Set<String>> dependencies, Map<String, Set<String>> dependents, Map<String, Set<String>> cycles, Map<Integer, Set<String>> layers) {
+        this.dependencies = copy(dependencies);
+        this.dependents = copy(dependents);
+        this.cycles = copy(cycles);
+        Map<String, Integer> layerMap = new TreeMap<>();
+        layers.forEach((layer, beans) -> beans.forEach(bean -> layerMap.put(bean, layer)));
+        this.layers = Collections.unmodifiableMap(layerMap);
+        Map<Integer, Set<String>> members = new TreeMap<>();
+        layers.forEach((layer, beans) -> members.put(layer, Collections.unmodifiableSet(new TreeSet<>(beans))));
+        this.layerMembers = Collections.unmodifiableMap(members);
+        this.etag = "\"" + digest() + "\"";
+    }
+
+    /**
+     * SHA-256 over the sorted maps. Strings are length prefixed so different graphs can't produce the same input.
+     */
+    private String digest() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Map<String, Set<String>> map : Arrays.asList(dependencies, dependents, cycles)) {
+            update(digest, map.size());
+            map.forEach((key, values) -> {
+                update(digest, key);
+                update(digest, values.size());
+                values.forEach(value -> update(digest, value));
+            });
+        }
+        update(digest, layers.size());
+        layers.forEach((bean, layer) -> {
+            update(digest, bean);
+            update(digest, layer);
+        });
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void update(MessageDigest digest, int value) {
+        digest.update(ByteBuffer.allocate(4).putInt(value).array());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        update(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static Map<String, Set<String>> copy(Map<String, Set<String>> map) {
+        Map<String, Set<String>> copy = new TreeMap<>();
+        map.forEach((k, v) -> copy.put(k, Collections.unmodifiableSet(new TreeSet<>(v))));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * @return entity tag that changes whenever the analysed graph changes
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public boolean containsBean(String bean) {
+        return dependencies.containsKey(bean) || dependents.containsKey(bean);
+    }
+
+    public Set<String> getDependencies(String bean) {
+        return dependencies.getOrDefault(bean, Collections.emptySet());
+    }
+
+    public Set<String> getDependents(String bean) {
+        return dependents.getOrDefault(bean, Collections.emptySet());
+    }
+
+    public Set<String> getCycles(String bean) {
+        return cycles.getOrDefault(bean, Collections.emptySet());
+    }
+
+    /**
+     * @return map of bean name to descriptions of the dependency cycles it is part of
+     */
+    public Map<String, Set<String>> getCircularDependencies() {
+        return cycles;
+    }
+
+    /**
+     * @return the beans in each layer of the bean graph
+     */
+    public Map<Integer, Set<String>> getLayers() {
+        return layerMembers;
+    }
+
+    /**
+     * @param bean bean name
+     * @return the layer of the bean in the bean graph or null if the bean is not part of it
+     */
+    public Integer getLayer(String bean) {
+        return layers.get(bean);
+    }
+
+    /**
+     * Finds the shortest dependency path using a bidirectional breadth first search that expands the smaller frontier
+     * first: forward along dependencies from the source and backward along dependents from the target.
+     *
+     * @param from bean name to start from
+     * @param to bean name that from (transitively) depends on
+     * @return the beans on the path including from and to or an empty list if from does not depend on to
+     */
+    public List<String> getShortestPath(String from, String to) {
+        if (from.equals(to)) {
+            return Collections.singletonList(from);
+        }
+        Map<String, String> forwardParents = new HashMap<>();
+        Map<String, String> backwardParents = new HashMap<>();
+        forwardParents.put(from, null);
+        backwardParents.put(to, null);
+        List<String> forwardFrontier = Collections.singletonList(from);
+        List<String> backwardFrontier = Collections.singletonList(to);
+
+        while (!forwardFrontier.isEmpty() && !backwardFrontier.isEmpty()) {
+            List<String> meetings = new ArrayList<>();
+            if (forwardFrontier.size() <= backwardFrontier.size()) {
+                forwardFrontier = expand(forwardFrontier, dependencies, forwardParents, backwardParents, meetings);
+            } else {
+                backwardFrontier = expand(backwardFrontier, dependents, backwardParents, forwardParents, meetings);
+            }
+            if (!meetings.isEmpty()) {
+                // every meeting found in this level is equally far from the side that was expanded, so pick the one
+                // closest to the other side
+                String meeting = meetings.get(0);
+                for (String candidate : meetings) {
+                    if (distance(candidate, forwardParents) + distance(candidate, backwardParents) < distance(meeting, forwardParents) + distance(meeting, backwardParents)) {
+                        meeting = candidate;
+                    }
+                }
+                LinkedList<String> path = new LinkedList<>();
+                for (String bean = meeting; bean != null; bean = forwardParents.get(bean)) {
+                    path.addFirst(bean);
+                }
+                for (String bean = backwardParents.get(meeting); bean != null; bean = backwardParents.get(bean)) {
+                    path.addLast(bean);
+                }
+                return path;
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static List<String> expand(List<String> frontier, Map<String, Set<String>> edges, Map<String, String> parents, Map<String, String> otherParents, List<String> meetings) {
+        List<String> next = new ArrayList<>();
+        for (String bean : frontier) {
+            for (String neighbour : edges.getOrDefault(bean, Collections.emptySet())) {
+                if (!parents.containsKey(neighbour)) {
+                    parents.put(neighbour, bean);
+                    if (otherParents.containsKey(neighbour)) {
+                        meetings.add(neighbour);
+                    }
+                    next.add(neighbour);
+                }
+            }
+        }
+        return next;
+    }
+
+    private static int distance(String bean, Map<String, String> parents) {
+        int distance = 0;
+        for (String parent = parents.get(bean); parent != null; parent = parents.get(parent)) {
+            distance++;
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,482 @@
+package com.jillesvangurp.springdepend;
+
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Bean related metadata of a single class, read straight from the class file with the ASM copy that ships with Spring.
+ * Nothing is loaded into the running application, which is what makes re-reading a changed class cheap.
+ */
+class BeanClassMetadata {
+    private static final String BEAN = "Lorg/springframework/context/annotation/Bean;";
+    private static final String AUTOWIRED = "Lorg/springframework/beans/factory/annotation/Autowired;";
+    private static final String QUALIFIER = "Lorg/springframework/beans/factory/annotation/Qualifier;";
+    private static final String INJECT = "Ljavax/inject/Inject;";
+    private static final String NAMED = "Ljavax/inject/Named;";
+    private static final String RESOURCE = "Ljavax/annotation/Resource;";
+    private static final String DEPENDS_ON = "Lorg/springframework/context/annotation/DependsOn;";
+    private static final Set<String> COLLECTIONS = new HashSet<>(Arrays.asList(
+            "java.util.Collection",
+            "java.util.List",
+            "java.util.Set",
+            "java.util.SortedSet",
+            "java.util.NavigableSet"));
+    private static final Set<String> WRAPPERS = new HashSet<>(Arrays.asList(
+            "java.util.Optional",
+            "org.springframework.beans.factory.ObjectFactory",
+            "org.springframework.beans.factory.ObjectProvider",
+            "javax.inject.Provider"));
+
+    /**
+     * A field, method parameter or constructor parameter that spring injects a bean into.
+     */
+    static class InjectionPoint {
+        /**
+         * Type of the injected beans, i.e. the element type for arrays, collections and maps. Null if the class file
+         * doesn't tell, e.g. for a type variable.
+         */
+        final String type;
+        final String name;
+        final String qualifier;
+        /**
+         * Array, collection or map that spring fills with all candidates.
+         */
+        final boolean multiple;
+        /**
+         * Optional or object factory; whether spring registers these as dependencies depends on its version and on
+         * whether the object was ever requested.
+         */
+        final boolean wrapped;
+
+        InjectionPoint(GenericType genericType, String name, String qualifier) {
+            GenericType element = genericType;
+            boolean multiple = false;
+            boolean wrapped = false;
+            if (genericType.componentType != null) {
+                element = genericType.componentType;
+                multiple = true;
+            } else if (COLLECTIONS.contains(genericType.className)) {
+                element = genericType.argument(0);
+                multiple = true;
+            } else if ("java.util.Map".equals(genericType.className)) {
+                element = genericType.argument(1);
+                multiple = true;
+            } else if (WRAPPERS.contains(genericType.className)) {
+                element = genericType.argument(0);
+                wrapped = true;
+            }
+            this.type = element == null ? null : element.className;
+            this.name = name;
+            this.qualifier = qualifier;
+            this.multiple = multiple;
+            this.wrapped = wrapped;
+        }
+    }
+
+    static class BeanMethod {
+        final String methodName;
+        final List<String> beanNames = new ArrayList<>();
+        final String returnType;
+        final List<InjectionPoint> parameters = new ArrayList<>();
+        final List<String> dependsOn = new ArrayList<>();
+
+        BeanMethod(String methodName, String returnType) {
+            this.methodName = methodName;
+            this.returnType = returnType;
+        }
+
+        String getBeanName() {
+            return beanNames.isEmpty() ? methodName : beanNames.get(0);
+        }
+    }
+
+    String className;
+    String superClassName;
+    final List<String> interfaceNames = new ArrayList<>();
+    /**
+     * Class level annotations by class name, with their value attribute if it is a non empty string or else null.
+     */
+    final Map<String, String> annotations = new LinkedHashMap<>();
+    final List<String> dependsOn = new ArrayList<>();
+    final List<BeanMethod> beanMethods = new ArrayList<>();
+    final List<InjectionPoint> injectedFields = new ArrayList<>();
+    final List<InjectionPoint> injectedMethodParameters = new ArrayList<>();
+    private final List<List<InjectionPoint>> constructors = new ArrayList<>();
+    private List<InjectionPoint> autowiredConstructor;
+
+    static BeanClassMetadata read(InputStream in) throws IOException {
+        BeanClassMetadata metadata = new BeanClassMetadata();
+        new ClassReader(in).accept(metadata.new Visitor(), ClassReader.SKIP_FRAMES);
+        return metadata;
+    }
+
+    /**
+     * @return the constructor spring uses for autowiring: the one annotated for it or the only one there is
+     */
+    List<InjectionPoint> getConstructorParameters() {
+        if (autowiredConstructor != null) {
+            return autowiredConstructor;
+        }
+        return constructors.size() == 1 ? constructors.get(0) : Collections.emptyList();
+    }
+
+    BeanMethod getBeanMethod(String beanName) {
+        for (BeanMethod method : beanMethods) {
+            if (method.getBeanName().equals(beanName)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private class Visitor extends ClassVisitor {
+        Visitor() {
+            super(SpringAsmInfo.ASM_VERSION);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            className = Type.getObjectType(name).getClassName();
+            superClassName = superName == null ? null : Type.getObjectType(superName).getClassName();
+            if (interfaces != null) {
+                for (String i : interfaces) {
+                    interfaceNames.add(Type.getObjectType(i).getClassName());
+                }
+            }
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            String annotation = Type.getType(desc).getClassName();
+            annotations.put(annotation, null);
+            if (DEPENDS_ON.equals(desc)) {
+                return new DependsOnVisitor(dependsOn);
+            }
+            return new AttributeVisitor("value", value -> annotations.put(annotation, value));
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            if ((access & Opcodes.ACC_STATIC) != 0) {
+                return null;
+            }
+            GenericType type = new GenericType.Parser(signature != null ? signature : desc).parseType();
+            return new FieldVisitor(SpringAsmInfo.ASM_VERSION) {
+                boolean injected;
+                String qualifier;
+
+                @Override
+                public AnnotationVisitor visitAnnotation(String annotationDesc, boolean visible) {
+                    if (AUTOWIRED.equals(annotationDesc) || INJECT.equals(annotationDesc)) {
+                        injected = true;
+                    } else if (RESOURCE.equals(annotationDesc)) {
+                        injected = true;
+                        return new AttributeVisitor("name", q -> qualifier = q);
+                    } else if (QUALIFIER.equals(annotationDesc) || NAMED.equals(annotationDesc)) {
+                        return new AttributeVisitor("value", q -> qualifier = q);
+                    }
+                    return null;
+                }
+
+                @Override
+                public void visitEnd() {
+                    if (injected) {
+                        injectedFields.add(new InjectionPoint(type, name, qualifier));
+                    }
+                }
+            };
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if ((access & (Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE)) != 0) {
+                return null;
+            }
+            return new InjectionMethodVisitor(access, name, desc, signature);
+        }
+    }
+
+    /**
+     * Collects the annotations of a method and its parameters. Parameter names come from the MethodParameters attribute
+     * or else the local variable table, which maven compiles in by default.
+     */
+    private class InjectionMethodVisitor extends MethodVisitor {
+        private final String name;
+        private final Type[] argumentTypes;
+        private final List<GenericType> genericTypes;
+        private final int[] slots;
+        private final String[] parameterNames;
+        private final String[] qualifiers;
+        private final String returnType;
+        private boolean bean;
+        private boolean autowired;
+        private final List<String> beanNames = new ArrayList<>();
+        private final List<String> dependsOn = new ArrayList<>();
+        private int parameterIndex;
+        private boolean fromParametersAttribute;
+
+        InjectionMethodVisitor(int access, String name, String desc, String signature) {
+            super(SpringAsmInfo.ASM_VERSION);
+            this.name = name;
+            argumentTypes = Type.getArgumentTypes(desc);
+            List<GenericType> types = signature == null ? null : new GenericType.Parser(signature).parseParameters();
+            if (types == null || types.size() != argumentTypes.length) {
+                // the signature leaves out synthetic parameters, e.g. the outer instance of an inner class
+                types = new GenericType.Parser(desc).parseParameters();
+            }
+            genericTypes = types;
+            returnType = Type.getReturnType(desc).getClassName();
+            slots = new int[argumentTypes.length];
+            int slot = (access & Opcodes.ACC_STATIC) != 0 ? 0 : 1;
+            for (int i = 0; i < argumentTypes.length; i++) {
+                slots[i] = slot;
+                slot += argumentTypes[i].getSize();
+            }
+            parameterNames = new String[argumentTypes.length];
+            qualifiers = new String[argumentTypes.length];
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            if (BEAN.equals(desc)) {
+                bean = true;
+                return new AnnotationVisitor(SpringAsmInfo.ASM_VERSION) {
+                    @Override
+                    public AnnotationVisitor visitArray(String attribute) {
+                        if ("name".equals(attribute) || "value".equals(attribute)) {
+                            return new ValuesVisitor(beanNames::add);
+                        }
+                        return null;
+                    }
+                };
+            }
+            if (AUTOWIRED.equals(desc) || INJECT.equals(desc)) {
+                autowired = true;
+            } else if (DEPENDS_ON.equals(desc)) {
+                return new DependsOnVisitor(dependsOn);
+            }
+            return null;
+        }
+
+        @Override
+        public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+            if (parameter < qualifiers.length && (QUALIFIER.equals(desc) || NAMED.equals(desc))) {
+                return new AttributeVisitor("value", q -> qualifiers[parameter] = q);
+            }
+            return null;
+        }
+
+        @Override
+        public void visitParameter(String parameterName, int access) {
+            // only present when compiled with -parameters; takes precedence over the local variable table
+            if (parameterIndex < parameterNames.length) {
+                parameterNames[parameterIndex] = parameterName;
+                fromParametersAttribute = true;
+            }
+            parameterIndex++;
+        }
+
+        @Override
+        public void visitLocalVariable(String variableName, String desc, String signature, Label start, Label end, int index) {
+            for (int i = 0; i < slots.length && !fromParametersAttribute; i++) {
+                if (slots[i] == index) {
+                    parameterNames[i] = variableName;
+                }
+            }
+        }
+
+        @Override
+        public void visitEnd() {
+            List<InjectionPoint> parameters = new ArrayList<>();
+            for (int i = 0; i < argumentTypes.length; i++) {
+                parameters.add(new InjectionPoint(genericTypes.get(i), parameterNames[i], qualifiers[i]));
+            }
+            if (bean) {
+                BeanMethod beanMethod = new BeanMethod(name, returnType);
+                beanMethod.beanNames.addAll(beanNames);
+                beanMethod.parameters.addAll(parameters);
+                beanMethod.dependsOn.addAll(dependsOn);
+                beanMethods.add(beanMethod);
+            } else if ("<init>".equals(name)) {
+                constructors.add(parameters);
+                if (autowired) {
+                    autowiredConstructor = parameters;
+                }
+            } else if (autowired) {
+                injectedMethodParameters.addAll(parameters);
+            }
+        }
+    }
+
+    /**
+     * The parts of a generic type signature that matter for injection. The ASM copy in spring doesn't include the
+     * signature package, so this parses the grammar from the JVM spec, which descriptors are a subset of.
+     */
+    static class GenericType {
+        /**
+         * Null for type variables and wildcards without an upper bound.
+         */
+        final String className;
+        final List<GenericType> arguments;
+        final GenericType componentType;
+
+        GenericType(String className, List<GenericType> arguments, GenericType componentType) {
+            this.className = className;
+            this.arguments = arguments;
+            this.componentType = componentType;
+        }
+
+        GenericType argument(int index) {
+            return index < arguments.size() ? arguments.get(index) : null;
+        }
+
+        private static class Parser {
+            private final String signature;
+            private int position;
+
+            Parser(String signature) {
+                this.signature = signature;
+            }
+
+            List<GenericType> parseParameters() {
+                if (signature.charAt(position) == '<') {
+                    // skip the type parameters of a generic method
+                    int depth = 0;
+                    do {
+                        char c = signature.charAt(position++);
+                        if (c == '<') {
+                            depth++;
+                        } else if (c == '>') {
+                            depth--;
+                        }
+                    } while (depth > 0);
+                }
+                List<GenericType> parameters = new ArrayList<>();
+                position++; // (
+                while (signature.charAt(position) != ')') {
+                    parameters.add(parseType());
+                }
+                return parameters;
+            }
+
+            GenericType parseType() {
+                char c = signature.charAt(position++);
+                switch (c) {
+                    case '[':
+                        GenericType componentType = parseType();
+                        String className = componentType.className == null ? null : componentType.className + "[]";
+                        return new GenericType(className, Collections.emptyList(), componentType);
+                    case 'T':
+                        position = signature.indexOf(';', position) + 1;
+                        return new GenericType(null, Collections.emptyList(), null);
+                    case 'L':
+                        return parseClassType();
+                    default:
+                        return new GenericType(Type.getType(String.valueOf(c)).getClassName(), Collections.emptyList(), null);
+                }
+            }
+
+            private GenericType parseClassType() {
+                StringBuilder className = new StringBuilder();
+                List<GenericType> arguments = Collections.emptyList();
+                while (true) {
+                    char c = signature.charAt(position++);
+                    if (c == ';') {
+                        return new GenericType(className.toString(), arguments, null);
+                    } else if (c == '<') {
+                        arguments = parseArguments();
+                    } else if (c == '.') {
+                        // type of an inner class of a generic class; only the innermost arguments apply
+                        className.append('$');
+                        arguments = Collections.emptyList();
+                    } else {
+                        className.append(c == '/' ? '.' : c);
+                    }
+                }
+            }
+
+            private List<GenericType> parseArguments() {
+                List<GenericType> arguments = new ArrayList<>();
+                char c;
+                while ((c = signature.charAt(position)) != '>') {
+                    if (c == '*') {
+                        position++;
+                        arguments.add(new GenericType(null, Collections.emptyList(), null));
+                    } else if (c == '-') {
+                        // lower bound; could be anything above it
+                        position++;
+                        parseType();
+                        arguments.add(new GenericType(null, Collections.emptyList(), null));
+                    } else {
+                        if (c == '+') {
+                            position++;
+                        }
+                        arguments.add(parseType());
+                    }
+                }
+                position++;
+                return arguments;
+            }
+        }
+    }
+
+    private static class DependsOnVisitor extends AnnotationVisitor {
+        private final List<String> dependsOn;
+
+        DependsOnVisitor(List<String> dependsOn) {
+            super(SpringAsmInfo.ASM_VERSION);
+            this.dependsOn = dependsOn;
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            return "value".equals(name) ? new ValuesVisitor(dependsOn::add) : null;
+        }
+    }
+
+    private static class ValuesVisitor extends AnnotationVisitor {
+        private final Consumer<String> consumer;
+
+        ValuesVisitor(Consumer<String> consumer) {
+            super(SpringAsmInfo.ASM_VERSION);
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            if (value instanceof String) {
+                consumer.accept((String) value);
+            }
+        }
+    }
+
+    private static class AttributeVisitor extends AnnotationVisitor {
+        private final String attribute;
+        private final Consumer<String> consumer;
+
+        AttributeVisitor(String attribute, Consumer<String> consumer) {
+            super(SpringAsmInfo.ASM_VERSION);
+            this.attribute = attribute;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            if (attribute.equals(name) && value instanceof String && !((String) value).isEmpty()) {
+                consumer.accept((String) value);
+            }
+        }
+    }
+}
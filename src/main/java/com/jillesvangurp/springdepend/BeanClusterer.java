@@ -0,0 +1,206 @@
+package com.jillesvangurp.springdepend;
+
+import com.jillesvangurp.springdepend.json.ModuleSuggestion;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Groups beans into candidate modules using label propagation over the undirected bean dependency graph. Beans end up
+ * in the same group when most of their neighbours are in that group, so groups have high internal and low external
+ * coupling.
+ * <p>
+ * Updates are semi-synchronous: the graph is greedily coloured so that no two neighbours share a colour, and each round
+ * updates one colour class at a time with a parallel stream. Beans in the same class never read each other's labels,
+ * so this behaves like the sequential algorithm without its ordering bias and without the oscillation of fully
+ * synchronous updates. Ties go to the smallest label, which keeps the result deterministic.
+ */
+public class BeanClusterer {
+    private static final int DEFAULT_MAX_ITERATIONS = 50;
+
+    private final Map<String, Set<String>> beanDependencies;
+    private final List<String> beans;
+    private final int[][] neighbours;
+    private final int[][] colourClasses;
+
+    /**
+     * @param beanDependencies map of bean name to the names of the beans it depends on, as returned by {@link SpringDependencyAnalyzer#getBeanDependencies()}
+     * @param reverseBeanDependencies map of bean name to the names of the beans depending on it, as returned by {@link SpringDependencyAnalyzer#getReverseBeanDependencies()}
+     */
+    public BeanClusterer(Map<String, Set<String>> beanDependencies, Map<String, Set<String>> reverseBeanDependencies) {
+        this.beanDependencies = beanDependencies;
+        Set<String> allBeans = new TreeSet<>(beanDependencies.keySet());
+        beanDependencies.values().forEach(allBeans::addAll);
+        allBeans.addAll(reverseBeanDependencies.keySet());
+        beans = new ArrayList<>(allBeans);
+
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < beans.size(); i++) {
+            index.put(beans.get(i), i);
+        }
+        neighbours = new int[beans.size()][];
+        for (int i = 0; i < beans.size(); i++) {
+            String bean = beans.get(i);
+            Set<Integer> adjacent = new TreeSet<>();
+            for (String dep : beanDependencies.getOrDefault(bean, Collections.emptySet())) {
+                adjacent.add(index.get(dep));
+            }
+            for (String dependent : reverseBeanDependencies.getOrDefault(bean, Collections.emptySet())) {
+                adjacent.add(index.get(dependent));
+            }
+            adjacent.remove(i);
+            neighbours[i] = adjacent.stream().mapToInt(Integer::intValue).toArray();
+        }
+        colourClasses = colour(neighbours);
+    }
+
+    private static int[][] colour(int[][] neighbours) {
+        int[] colours = new int[neighbours.length];
+        Arrays.fill(colours, -1);
+        int colourCount = 0;
+        for (int i = 0; i < neighbours.length; i++) {
+            Set<Integer> used = new HashSet<>();
+            for (int neighbour : neighbours[i]) {
+                used.add(colours[neighbour]);
+            }
+            int colour = 0;
+            while (used.contains(colour)) {
+                colour++;
+            }
+            colours[i] = colour;
+            colourCount = Math.max(colourCount, colour + 1);
+        }
+        int[][] classes = new int[colourCount][];
+        for (int c = 0; c < colourCount; c++) {
+            int colour = c;
+            classes[c] = IntStream.range(0, colours.length).filter(i -> colours[i] == colour).toArray();
+        }
+        return classes;
+    }
+
+    /**
+     * @return groups of bean names, largest first
+     */
+    public List<Set<String>> getClusters() {
+        return getClusters(DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * @param maxIterations upper bound for the number of label propagation rounds
+     * @return groups of bean names, largest first
+     */
+    public List<Set<String>> getClusters(int maxIterations) {
+        int[] labels = IntStream.range(0, beans.size()).toArray();
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            boolean changed = false;
+            for (int[] colourClass : colourClasses) {
+                int[] next = Arrays.stream(colourClass).parallel().map(i -> vote(i, labels)).toArray();
+                for (int j = 0; j < colourClass.length; j++) {
+                    if (labels[colourClass[j]] != next[j]) {
+                        labels[colourClass[j]] = next[j];
+                        changed = true;
+                    }
+                }
+            }
+            if (!changed) {
+                break;
+            }
+        }
+
+        Map<Integer, Set<String>> groups = new TreeMap<>();
+        for (int i = 0; i < labels.length; i++) {
+            Set<String> group = groups.get(labels[i]);
+            if (group == null) {
+                group = new TreeSet<>();
+                groups.put(labels[i], group);
+            }
+            group.add(beans.get(i));
+        }
+        List<Set<String>> clusters = new ArrayList<>(groups.values());
+        clusters.sort((c1, c2) -> Integer.compare(c2.size(), c1.size()));
+        return clusters;
+    }
+
+    private int vote(int node, int[] labels) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        counts.put(labels[node], 1);
+        for (int neighbour : neighbours[node]) {
+            counts.merge(labels[neighbour], 1, Integer::sum);
+        }
+        int best = labels[node];
+        int bestCount = 0;
+        for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+            int label = entry.getKey();
+            int count = entry.getValue();
+            if (count > bestCount || (count == bestCount && label < best)) {
+                best = label;
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Turns the clusters into suggestions for lazily loaded child contexts. Beans in a child context may depend on the
+     * parent but not the other way around, so any bean that is (transitively) needed by a bean outside the group has
+     * to stay in the parent and is still created at startup.
+     *
+     * @return suggestions for groups of at least two beans that would save at least one startup bean, the ones saving
+     *         the most first
+     */
+    public List<ModuleSuggestion> getModuleSuggestions() {
+        List<ModuleSuggestion> suggestions = new ArrayList<>();
+        for (Set<String> cluster : getClusters()) {
+            if (cluster.size() < 2) {
+                continue;
+            }
+            ModuleSuggestion suggestion = suggest(cluster);
+            if (suggestion.getStartupBeansSaved() > 0) {
+                // otherwise the parent needs every bean in the group and nothing can be split off
+                suggestions.add(suggestion);
+            }
+        }
+        suggestions.sort((s1, s2) -> {
+            int i = s2.getStartupBeansSaved().compareTo(s1.getStartupBeansSaved());
+            return i == 0 ? Integer.compare(s2.getBeanNames().size(), s1.getBeanNames().size()) : i;
+        });
+        return suggestions;
+    }
+
+    private ModuleSuggestion suggest(Set<String> cluster) {
+        int internal = 0;
+        List<String> incoming = new ArrayList<>();
+        List<String> outgoing = new ArrayList<>();
+        Deque<String> neededByParent = new ArrayDeque<>();
+
+        for (Map.Entry<String, Set<String>> entry : beanDependencies.entrySet()) {
+            String bean = entry.getKey();
+            boolean inside = cluster.contains(bean);
+            for (String dep : entry.getValue()) {
+                boolean depInside = cluster.contains(dep);
+                if (inside && depInside) {
+                    internal++;
+                } else if (inside) {
+                    outgoing.add(bean + "->" + dep);
+                } else if (depInside) {
+                    incoming.add(bean + "->" + dep);
+                    neededByParent.add(dep);
+                }
+            }
+        }
+
+        Set<String> required = new HashSet<>();
+        while (!neededByParent.isEmpty()) {
+            String bean = neededByParent.pop();
+            if (required.add(bean)) {
+                for (String dep : beanDependencies.getOrDefault(bean, Collections.emptySet())) {
+                    if (cluster.contains(dep)) {
+                        neededByParent.push(dep);
+                    }
+                }
+            }
+        }
+
+        return new ModuleSuggestion(new ArrayList<>(cluster), internal, incoming, outgoing, cluster.size() - required.size());
+    }
+}
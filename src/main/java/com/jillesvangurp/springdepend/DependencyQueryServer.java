@@ -0,0 +1,247 @@
+package com.jillesvangurp.springdepend;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Embedded HTTP server for interactively exploring the dependency graph of a running application. All requests are
+ * answered from one cached, immutable {@link AnalysisSnapshot}; call {@link #refresh()} to re-analyze.
+ * <p>
+ * Supported GET requests, all returning JSON:
+ * <ul>
+ * <li>/dependencies?bean=name</li>
+ * <li>/dependents?bean=name</li>
+ * <li>/path?from=name&amp;to=name shortest dependency path</li>
+ * <li>/cycles?bean=name dependency cycles containing the bean</li>
+ * <li>/layer?bean=name</li>
+ * </ul>
+ * Responses carry an ETag derived from the snapshot, so clients that poll with If-None-Match get an empty 304 until the
+ * graph changes.
+ * <p>
+ * Requests are handled on virtual threads when the JVM supports them and on a cached pool of daemon threads otherwise.
+ */
+public class DependencyQueryServer {
+    private final SpringDependencyAnalyzer analyzer;
+    private final InetSocketAddress address;
+    private final Gson gson = new Gson();
+    private volatile AnalysisSnapshot snapshot;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Listens on the loopback address only; the server has no authentication, so use the other constructor only if
+     * you really want to expose the bean graph on another interface.
+     *
+     * @param analyzer analyzer for the context to serve
+     * @param port port to listen on, use 0 to pick a free port
+     */
+    public DependencyQueryServer(SpringDependencyAnalyzer analyzer, int port) {
+        this(analyzer, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * @param analyzer analyzer for the context to serve
+     * @param address address to listen on
+     */
+    public DependencyQueryServer(SpringDependencyAnalyzer analyzer, InetSocketAddress address) {
+        this.analyzer = analyzer;
+        this.address = address;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("already started");
+        }
+        snapshot = analyzer.createSnapshot();
+        executor = createExecutor();
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdown();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * Re-analyzes the context and atomically replaces the snapshot that requests are answered from.
+     */
+    public void refresh() {
+        snapshot = analyzer.createSnapshot();
+    }
+
+    /**
+     * Replaces the snapshot that requests are answered from, e.g. with one pushed by a {@link DependencyWatcher}.
+     *
+     * @param snapshot the new snapshot
+     */
+    public void update(AnalysisSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return the address the server is listening on, useful when started on port 0
+     */
+    public synchronized InetSocketAddress getAddress() {
+        if (server == null) {
+            throw new IllegalStateException("not started");
+        }
+        return server.getAddress();
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Java 21+; looked up reflectively because we still target Java 8
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "spring-depend-query");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("only GET is supported"));
+                return;
+            }
+            Map<String, String> params;
+            try {
+                params = parseQuery(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, error("malformed query: " + e.getMessage()));
+                return;
+            }
+            AnalysisSnapshot current = snapshot;
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), current.getEtag())) {
+                // every answer is derived from the snapshot, so this is decided before running the query
+                exchange.getResponseHeaders().set("ETag", current.getEtag());
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            switch (path) {
+                case "/dependencies":
+                    withBean(exchange, current, params, current::getDependencies);
+                    break;
+                case "/dependents":
+                    withBean(exchange, current, params, current::getDependents);
+                    break;
+                case "/cycles":
+                    withBean(exchange, current, params, current::getCycles);
+                    break;
+                case "/layer":
+                    withBean(exchange, current, params, bean -> {
+                        Map<String, Object> result = new LinkedHashMap<>();
+                        result.put("bean", bean);
+                        result.put("layer", current.getLayer(bean));
+                        return result;
+                    });
+                    break;
+                case "/path":
+                    String from = params.get("from");
+                    String to = params.get("to");
+                    if (from == null || to == null) {
+                        send(exchange, 400, error("missing parameter from or to"));
+                    } else if (!current.containsBean(from) || !current.containsBean(to)) {
+                        send(exchange, 404, error("unknown bean " + (current.containsBean(from) ? to : from)));
+                    } else {
+                        sendResult(exchange, current, current.getShortestPath(from, to));
+                    }
+                    break;
+                default:
+                    send(exchange, 404, error("unknown endpoint " + path));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void withBean(HttpExchange exchange, AnalysisSnapshot current, Map<String, String> params, Function<String, Object> query) throws IOException {
+        String bean = params.get("bean");
+        if (bean == null) {
+            send(exchange, 400, error("missing parameter bean"));
+        } else if (!current.containsBean(bean)) {
+            send(exchange, 404, error("unknown bean " + bean));
+        } else {
+            sendResult(exchange, current, query.apply(bean));
+        }
+    }
+
+    private void sendResult(HttpExchange exchange, AnalysisSnapshot current, Object result) throws IOException {
+        exchange.getResponseHeaders().set("ETag", current.getEtag());
+        send(exchange, 200, gson.toJson(result));
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if ("*".equals(trimmed) || etag.equals(trimmed) || ("W/" + etag).equals(trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String error(String message) {
+        return gson.toJson(Collections.singletonMap("error", message));
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int idx = pair.indexOf('=');
+            if (idx > 0) {
+                params.put(decode(pair.substring(0, idx)), decode(pair.substring(idx + 1)));
+            }
+        }
+        return params;
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
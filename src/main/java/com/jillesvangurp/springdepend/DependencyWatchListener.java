@@ -0,0 +1,15 @@
+package com.jillesvangurp.springdepend;
+
+import java.util.Set;
+
+/**
+ * Receives the re-analyzed dependency graph from a {@link DependencyWatcher}.
+ */
+@FunctionalInterface
+public interface DependencyWatchListener {
+    /**
+     * @param snapshot the updated analysis, including the cycles and layers of the bean graph
+     * @param changedClasses names of the classes that were added, modified or deleted since the last update
+     */
+    void onChange(AnalysisSnapshot snapshot, Set<String> changedClasses);
+}
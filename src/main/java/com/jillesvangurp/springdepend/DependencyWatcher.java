@@ -0,0 +1,190 @@
+package com.jillesvangurp.springdepend;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches compiled class directories and re-analyzes the bean graph when classes change. A compile typically writes a
+ * burst of class files, so events are collected until the directories have been quiet for the debounce interval and
+ * then handled in one go. Only the metadata of the changed classes is re-read (see {@link IncrementalBeanGraph}), so a
+ * typical change is re-analyzed in milliseconds instead of rebuilding the context.
+ * <p>
+ * Note that the context itself is not refreshed; the snapshots reflect what the context would look like with the
+ * changed classes.
+ */
+public class DependencyWatcher implements Closeable {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+    private static final Logger LOG = LoggerFactory.getLogger(DependencyWatcher.class);
+
+    private final IncrementalBeanGraph graph;
+    private final List<Path> classDirectories;
+    private final long debounceMillis;
+    private final DependencyWatchListener listener;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private WatchService watchService;
+    private Thread thread;
+
+    DependencyWatcher(IncrementalBeanGraph graph, List<Path> classDirectories, long debounceMillis, DependencyWatchListener listener) {
+        this.graph = graph;
+        this.classDirectories = new ArrayList<>();
+        classDirectories.forEach(d -> this.classDirectories.add(d.toAbsolutePath().normalize()));
+        this.debounceMillis = debounceMillis;
+        this.listener = listener;
+    }
+
+    synchronized void start() throws IOException {
+        if (thread != null) {
+            throw new IllegalStateException("already started");
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path directory : classDirectories) {
+            registerAll(directory, null);
+        }
+        thread = new Thread(this::run, "spring-depend-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching. Once this returns the listener is no longer called, unless this is called from the listener.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread watcherThread;
+        synchronized (this) {
+            if (watchService != null) {
+                watchService.close();
+            }
+            watcherThread = thread;
+        }
+        if (watcherThread != null && watcherThread != Thread.currentThread()) {
+            watcherThread.interrupt();
+            try {
+                watcherThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<Path> changed = new HashSet<>();
+                collect(watchService.take(), changed);
+                WatchKey key;
+                while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changed);
+                }
+                Set<String> changedClasses = toClassNames(changed);
+                if (!changedClasses.isEmpty()) {
+                    analyze(changedClasses);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void analyze(Set<String> changedClasses) {
+        try {
+            graph.update(changedClasses);
+            if (Thread.currentThread().isInterrupted()) {
+                // closed while reading class files, which interrupted reads make look deleted
+                return;
+            }
+            listener.onChange(SpringDependencyAnalyzer.createSnapshot(graph.getDependencies()), changedClasses);
+        } catch (RuntimeException e) {
+            // keep watching; the next change may well fix it
+            LOG.warn("failed to re-analyze {}", changedClasses, e);
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // we lost track of what changed so treat everything as changed
+                for (Path classDirectory : classDirectories) {
+                    registerAllQuietly(classDirectory, changed);
+                }
+                continue;
+            }
+            if (directory == null) {
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // e.g. a new package; watch it and pick up whatever was written before we did
+                registerAllQuietly(path, changed);
+            } else {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    private void registerAllQuietly(Path directory, Set<Path> classFiles) {
+        try {
+            registerAll(directory, classFiles);
+        } catch (IOException e) {
+            LOG.warn("failed to watch {}", directory, e);
+        }
+    }
+
+    private void registerAll(Path root, Set<Path> classFiles) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (classFiles != null) {
+                    classFiles.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private Set<String> toClassNames(Set<Path> paths) {
+        Set<String> classNames = new TreeSet<>();
+        for (Path path : paths) {
+            String fileName = path.getFileName().toString();
+            if (!fileName.endsWith(".class")) {
+                continue;
+            }
+            for (Path classDirectory : classDirectories) {
+                if (path.startsWith(classDirectory)) {
+                    String relative = classDirectory.relativize(path).toString();
+                    classNames.add(relative.substring(0, relative.length() - ".class".length()).replace(path.getFileSystem().getSeparator(), "."));
+                    break;
+                }
+            }
+        }
+        return classNames;
+    }
+}
@@ -0,0 +1,289 @@
+package com.jillesvangurp.springdepend;
+
+import com.jillesvangurp.springdepend.json.BeanHeapUsage;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Estimates shallow and retained heap size of singleton beans by walking their object graphs with reflection.
+ * <p>
+ * Sizes assume a 64 bit JVM with compressed oops: 12 byte object headers, 16 byte array headers, 4 byte references and
+ * 8 byte alignment. Objects are counted once: the walk stops at other singletons, which account for their own graph,
+ * and each object is charged to the first bean that reaches it. Beans are walked dependencies first, so an object
+ * shared between a bean and the beans depending on it is charged to the dependency; an object shared by unrelated
+ * beans is charged to whichever of them comes first by name. This is not the dominator based retained size a heap
+ * dump tool reports, which would charge such an object to neither bean.
+ * <p>
+ * Objects whose fields cannot be made accessible, e.g. JDK classes on Java 9+ without --add-opens, are sized from
+ * their declared fields. Maps, collections, strings, atomic references and optionals are walked through their public
+ * API, maps and collections with a fixed per element overhead. Any other such object is counted as unreadable and its
+ * graph is not walked, so a non zero unreadable count means the sizes are too low. Thread locals are always counted
+ * as unreadable since their values are held by the threads.
+ */
+public class HeapEstimator {
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE_SIZE = 4;
+    private static final int ALIGNMENT = 8;
+    private static final int MAP_ENTRY_OVERHEAD = 32;
+    private static final int COLLECTION_ELEMENT_OVERHEAD = 16;
+
+    private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>() {
+        @Override
+        protected Layout computeValue(Class<?> type) {
+            return Layout.of(type);
+        }
+    };
+
+    private final Map<String, Object> singletons;
+    private final Map<String, Set<String>> beanDependencies;
+    private final Predicate<Object> stopAt;
+
+    /**
+     * @param singletons bean name to singleton instance for every bean that should be measured
+     * @param beanDependencies map of bean name to the names of the beans it depends on, used for ordering and for rolling up sizes
+     * @param stopAt objects for which this returns true are not counted or walked, e.g. the bean factory itself
+     */
+    public HeapEstimator(Map<String, Object> singletons, Map<String, Set<String>> beanDependencies, Predicate<Object> stopAt) {
+        this.singletons = singletons;
+        this.beanDependencies = beanDependencies;
+        this.stopAt = stopAt;
+    }
+
+    /**
+     * @return heap usage per bean; the total retained size includes the retained size of all transitive dependencies
+     */
+    public Map<String, BeanHeapUsage> estimate() {
+        IdentitySet boundaries = new IdentitySet(singletons.size());
+        singletons.values().forEach(boundaries::add);
+        IdentitySet visited = new IdentitySet();
+
+        Map<String, Long> shallow = new HashMap<>();
+        Map<String, Long> retained = new HashMap<>();
+        Map<String, Long> unreadable = new HashMap<>();
+        for (String bean : dependenciesFirst()) {
+            Object instance = singletons.get(bean);
+            if (instance == null || !visited.add(instance)) {
+                // not instantiated or registered under several names; only the first name owns it
+                shallow.put(bean, 0L);
+                retained.put(bean, 0L);
+                unreadable.put(bean, 0L);
+                continue;
+            }
+            Walk walk = new Walk();
+            walk(instance, visited, boundaries, walk);
+            shallow.put(bean, shallowSize(instance));
+            retained.put(bean, walk.size);
+            unreadable.put(bean, walk.unreadable);
+        }
+
+        Map<String, BeanHeapUsage> result = new TreeMap<>();
+        shallow.forEach((bean, size) -> {
+            long total = 0;
+            for (String reachable : transitiveDependencies(bean)) {
+                total += retained.getOrDefault(reachable, 0L);
+            }
+            result.put(bean, new BeanHeapUsage(size, retained.get(bean), total, unreadable.get(bean)));
+        });
+        return result;
+    }
+
+    private List<String> dependenciesFirst() {
+        List<String> order = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (String bean : new TreeSet<>(singletons.keySet())) {
+            addDependenciesFirst(bean, seen, order);
+        }
+        return order;
+    }
+
+    private void addDependenciesFirst(String bean, Set<String> seen, List<String> order) {
+        if (!seen.add(bean)) {
+            return;
+        }
+        for (String dep : beanDependencies.getOrDefault(bean, Collections.emptySet())) {
+            addDependenciesFirst(dep, seen, order);
+        }
+        if (singletons.containsKey(bean)) {
+            order.add(bean);
+        }
+    }
+
+    private Set<String> transitiveDependencies(String bean) {
+        Set<String> reachable = new HashSet<>();
+        Deque<String> stack = new ArrayDeque<>();
+        stack.push(bean);
+        while (!stack.isEmpty()) {
+            String current = stack.pop();
+            if (reachable.add(current)) {
+                beanDependencies.getOrDefault(current, Collections.emptySet()).forEach(stack::push);
+            }
+        }
+        return reachable;
+    }
+
+    private static final class Walk {
+        private long size;
+        private long unreadable;
+    }
+
+    private void walk(Object root, IdentitySet visited, IdentitySet boundaries, Walk walk) {
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(root);
+        List<Object> children = new ArrayList<>();
+        while (!stack.isEmpty()) {
+            Object current = stack.pop();
+            walk.size += shallowSize(current);
+            children.clear();
+            collectChildren(current, children, walk);
+            for (Object child : children) {
+                if (child != null && !skip(child, boundaries) && visited.add(child)) {
+                    stack.push(child);
+                }
+            }
+        }
+    }
+
+    private boolean skip(Object o, IdentitySet boundaries) {
+        return boundaries.contains(o) || o instanceof Class || o instanceof ClassLoader || o instanceof Thread || stopAt.test(o);
+    }
+
+    /**
+     * Adds the objects referenced by o to children, plus any extra size estimated for opaque objects to the walk.
+     */
+    private static void collectChildren(Object o, List<Object> children, Walk walk) {
+        Class<?> type = o.getClass();
+        if (type.isArray()) {
+            if (!type.getComponentType().isPrimitive()) {
+                Collections.addAll(children, (Object[]) o);
+            }
+            return;
+        }
+        Layout layout = LAYOUTS.get(type);
+        for (Field field : layout.references) {
+            try {
+                children.add(field.get(o));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        if (o instanceof ThreadLocal) {
+            // the values live in the threads; get() would run initialValue() on the analyzing thread
+            walk.unreadable++;
+            return;
+        }
+        if (!layout.opaque) {
+            return;
+        }
+        try {
+            if (o instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) o;
+                map.forEach((k, v) -> {
+                    children.add(k);
+                    children.add(v);
+                });
+                walk.size += (long) map.size() * MAP_ENTRY_OVERHEAD;
+            } else if (o instanceof Collection) {
+                Collection<?> collection = (Collection<?>) o;
+                children.addAll(collection);
+                walk.size += (long) collection.size() * COLLECTION_ELEMENT_OVERHEAD;
+            } else if (o instanceof String) {
+                walk.size += align(ARRAY_HEADER + ((String) o).length());
+            } else if (o instanceof AtomicReference) {
+                children.add(((AtomicReference<?>) o).get());
+            } else if (o instanceof AtomicReferenceArray) {
+                AtomicReferenceArray<?> array = (AtomicReferenceArray<?>) o;
+                walk.size += align(ARRAY_HEADER + (long) array.length() * REFERENCE_SIZE);
+                for (int i = 0; i < array.length(); i++) {
+                    children.add(array.get(i));
+                }
+            } else if (o instanceof Optional) {
+                children.add(((Optional<?>) o).orElse(null));
+            } else {
+                // includes references, as get() would refresh the clock of a soft reference
+                walk.unreadable++;
+            }
+        } catch (RuntimeException e) {
+            // concurrently modified or lazily loaded; count what we have
+        }
+    }
+
+    static long shallowSize(Object o) {
+        Class<?> type = o.getClass();
+        if (type.isArray()) {
+            Class<?> component = type.getComponentType();
+            int elementSize = component.isPrimitive() ? primitiveSize(component) : REFERENCE_SIZE;
+            return align(ARRAY_HEADER + (long) Array.getLength(o) * elementSize);
+        }
+        return LAYOUTS.get(type).shallowSize;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else {
+            return 1;
+        }
+    }
+
+    private static final class Layout {
+        private final long shallowSize;
+        private final Field[] references;
+        private final boolean opaque;
+
+        private Layout(long shallowSize, Field[] references, boolean opaque) {
+            this.shallowSize = shallowSize;
+            this.references = references;
+            this.opaque = opaque;
+        }
+
+        private static Layout of(Class<?> type) {
+            long size = OBJECT_HEADER;
+            List<Field> references = new ArrayList<>();
+            boolean opaque = false;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                Field[] fields;
+                try {
+                    fields = c.getDeclaredFields();
+                } catch (LinkageError e) {
+                    // a field type is missing from the classpath, e.g. an optional dependency of a library
+                    opaque = true;
+                    continue;
+                }
+                for (Field field : fields) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    Class<?> fieldType = field.getType();
+                    if (fieldType.isPrimitive()) {
+                        size += primitiveSize(fieldType);
+                        continue;
+                    }
+                    size += REFERENCE_SIZE;
+                    try {
+                        field.setAccessible(true);
+                        references.add(field);
+                    } catch (RuntimeException e) {
+                        // module encapsulation on Java 9+
+                        opaque = true;
+                    }
+                }
+            }
+            return new Layout(align(size), references.toArray(new Field[references.size()]), opaque);
+        }
+    }
+}
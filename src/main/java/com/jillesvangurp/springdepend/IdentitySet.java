@@ -0,0 +1,83 @@
+package com.jillesvangurp.springdepend;
+
+/**
+ * Minimal identity based set using open addressing with linear probing in a single Object array. Unlike
+ * IdentityHashMap or a set backed by one, there are no entry objects or value slots, so the memory overhead is one
+ * reference per slot. Only supports adding and lookup, which is all an object graph walk needs.
+ */
+final class IdentitySet {
+    private Object[] table;
+    private int size;
+
+    IdentitySet() {
+        this(1024);
+    }
+
+    IdentitySet(int expectedSize) {
+        int capacity = 16;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        table = new Object[capacity];
+    }
+
+    /**
+     * @param o
+     *            object to add, must not be null
+     * @return true if the object was not in the set yet
+     */
+    boolean add(Object o) {
+        int mask = table.length - 1;
+        int i = hash(o) & mask;
+        Object existing;
+        while ((existing = table[i]) != null) {
+            if(existing == o) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = o;
+        if(++size * 2 > table.length) {
+            resize();
+        }
+        return true;
+    }
+
+    boolean contains(Object o) {
+        int mask = table.length - 1;
+        int i = hash(o) & mask;
+        Object existing;
+        while ((existing = table[i]) != null) {
+            if(existing == o) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        Object[] old = table;
+        table = new Object[old.length << 1];
+        int mask = table.length - 1;
+        for (Object o : old) {
+            if (o != null) {
+                int i = hash(o) & mask;
+                while (table[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = o;
+            }
+        }
+    }
+
+    private static int hash(Object o) {
+        int h = System.identityHashCode(o);
+        // identity hashes are not well distributed in the low bits, so mix them like HashMap does
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,459 @@
+package com.jillesvangurp.springdepend;
+
+import com.jillesvangurp.springdepend.BeanClassMetadata.BeanMethod;
+import com.jillesvangurp.springdepend.BeanClassMetadata.InjectionPoint;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.type.MethodMetadata;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Bean dependency graph that is seeded once from a running bean factory and then kept up to date from changed class
+ * files. Re-derived are the beans that a changed class defines (as component or through @Bean methods) or that are of a
+ * changed type, and the beans with an injection point whose candidates were added, removed or changed their
+ * supertypes; everything else is left alone. Beans whose metadata can't be read from the class directories, e.g.
+ * because they come from a jar, keep the dependencies spring reported for them. A bean is only removed when its class
+ * file or its @Bean method is gone, since there are many ways to register one besides component scanning.
+ * <p>
+ * Injection points are resolved like spring does for the common cases: qualifier first, then by type, then by name
+ * among multiple candidates of the same type. Arrays, collections and maps get all candidates of their element type.
+ * Dependencies spring reported that the injection points and @DependsOn don't account for when seeding, e.g. from
+ * xml, SpEL, superclasses in a jar, or Optional and object factory injection, which spring may or may not register,
+ * are kept as they are.
+ */
+class IncrementalBeanGraph {
+    private static final Set<String> SCANNED_ANNOTATIONS = new HashSet<>(Arrays.asList(
+            "org.springframework.stereotype.Component",
+            "javax.annotation.ManagedBean",
+            "javax.inject.Named"));
+
+    private final List<Path> classDirectories;
+    private final ClassLoader classLoader;
+    private final Map<String, Set<String>> dependencies = new TreeMap<>();
+    private final Map<String, String> beanTypes = new HashMap<>();
+    private final Map<String, String> factoryClasses = new HashMap<>();
+    private final Map<String, Set<String>> contributedBeans = new HashMap<>();
+    private final Map<String, Set<String>> assignableTypes = new HashMap<>();
+    private final Map<String, Optional<BeanClassMetadata>> metadataCache = new HashMap<>();
+    private final Map<String, Set<String>> extraDependencies = new HashMap<>();
+    private final Map<String, Boolean> stereotypes = new HashMap<>();
+
+    IncrementalBeanGraph(ConfigurableListableBeanFactory factory, List<Path> classDirectories) {
+        this.classDirectories = classDirectories;
+        classLoader = factory.getBeanClassLoader() != null ? factory.getBeanClassLoader() : ClassUtils.getDefaultClassLoader();
+        for (String beanName : factory.getBeanDefinitionNames()) {
+            BeanDefinition definition = factory.getBeanDefinition(beanName);
+            if (definition.isAbstract()) {
+                continue;
+            }
+            dependencies.put(beanName, new TreeSet<>(Arrays.asList(factory.getDependenciesForBean(beanName))));
+            String typeName = declaredType(factory, beanName);
+            if (typeName != null) {
+                beanTypes.put(beanName, typeName);
+            }
+            String factoryBeanName = definition.getFactoryBeanName();
+            String factoryClass = factoryBeanName == null ? null : declaredType(factory, factoryBeanName);
+            if (factoryClass != null && definition.getFactoryMethodName() != null) {
+                factoryClasses.put(beanName, factoryClass);
+                contributedBeans.computeIfAbsent(factoryClass, k -> new HashSet<>()).add(beanName);
+            } else if (typeName != null) {
+                contributedBeans.computeIfAbsent(typeName, k -> new HashSet<>()).add(beanName);
+            }
+        }
+        // remember what the beans can be injected as, so changes to that can be detected
+        beanTypes.values().forEach(this::assignableTypes);
+        for (String bean : dependencies.keySet()) {
+            Set<String> derived = derive(bean);
+            if (derived != null) {
+                Set<String> extra = new TreeSet<>(dependencies.get(bean));
+                extra.removeAll(derived);
+                if (!extra.isEmpty()) {
+                    extraDependencies.put(bean, extra);
+                }
+            }
+        }
+    }
+
+    /**
+     * The class the bean is declared with rather than the class of the instance, which may be a CGLIB subclass or a JDK
+     * proxy that none of the class files describe.
+     */
+    private static String declaredType(ConfigurableListableBeanFactory factory, String beanName) {
+        BeanDefinition definition = factory.containsBeanDefinition(beanName) ? factory.getMergedBeanDefinition(beanName) : null;
+        if (definition != null && definition.getFactoryMethodName() == null && definition.getBeanClassName() != null && !factory.isFactoryBean(beanName)) {
+            String className = definition.getBeanClassName();
+            int separator = className.indexOf(ClassUtils.CGLIB_CLASS_SEPARATOR);
+            return separator < 0 ? className : className.substring(0, separator);
+        }
+        // @Bean methods and factory beans: the type spring reports is more specific than the declaration, unless it is a proxy
+        Class<?> type = factory.getType(beanName);
+        if (type != null && !Proxy.isProxyClass(type)) {
+            return ClassUtils.getUserClass(type).getName();
+        }
+        BeanDefinition original = definition == null ? null : factory.getBeanDefinition(beanName);
+        if (original instanceof AnnotatedBeanDefinition) {
+            MethodMetadata method = ((AnnotatedBeanDefinition) original).getFactoryMethodMetadata();
+            if (method != null) {
+                return method.getReturnTypeName();
+            }
+        }
+        return null;
+    }
+
+    Map<String, Set<String>> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * @param changedClasses names of classes that were added, modified or deleted in the class directories
+     */
+    void update(Set<String> changedClasses) {
+        // what the beans of the changed classes and their subclasses could be injected as so far
+        Map<String, Set<String>> typesBefore = new HashMap<>();
+        beanTypes.forEach((bean, type) -> {
+            Set<String> types = assignableTypes(type);
+            String factoryClass = factoryClasses.get(bean);
+            if ((factoryClass != null && changedClasses.contains(factoryClass)) || !Collections.disjoint(types, changedClasses)) {
+                typesBefore.put(bean, types);
+            }
+        });
+        changedClasses.forEach(metadataCache::remove);
+        assignableTypes.clear();
+        stereotypes.clear();
+
+        Set<String> affected = new HashSet<>();
+        Set<String> addedOrRemoved = new HashSet<>();
+        for (String className : changedClasses) {
+            BeanClassMetadata metadata = metadata(className);
+            if (metadata == null && classFile(className) != null) {
+                // being written or corrupt; the next change event will pick it up
+                continue;
+            }
+            Set<String> oldBeans = contributedBeans.getOrDefault(className, Collections.emptySet());
+            Set<String> newBeans = new HashSet<>();
+            if (metadata != null) {
+                // a bean of this class stays whatever registered it: scanning, @Import, xml, ...
+                String name = ownBeanName(oldBeans);
+                String stereotype = stereotype(metadata);
+                if (name == null && stereotype != null) {
+                    name = metadata.annotations.get(stereotype) != null ? metadata.annotations.get(stereotype) : Introspector.decapitalize(ClassUtils.getShortName(className));
+                    beanTypes.putIfAbsent(name, className);
+                    factoryClasses.remove(name);
+                }
+                if (name != null) {
+                    newBeans.add(name);
+                }
+                for (BeanMethod method : metadata.beanMethods) {
+                    name = method.getBeanName();
+                    newBeans.add(name);
+                    if (!oldBeans.contains(name)) {
+                        // for existing beans the type spring reported is more specific than the return type
+                        beanTypes.put(name, method.returnType);
+                    }
+                    factoryClasses.put(name, className);
+                }
+            }
+            // only beans whose class file or @Bean method is gone
+            for (String removed : oldBeans) {
+                if (!newBeans.contains(removed)) {
+                    dependencies.remove(removed);
+                    beanTypes.remove(removed);
+                    factoryClasses.remove(removed);
+                    extraDependencies.remove(removed);
+                    extraDependencies.values().forEach(extra -> extra.remove(removed));
+                    dependencies.forEach((bean, deps) -> {
+                        if (deps.remove(removed)) {
+                            affected.add(bean);
+                        }
+                    });
+                    addedOrRemoved.add(removed);
+                }
+            }
+            for (String added : newBeans) {
+                if (!oldBeans.contains(added)) {
+                    addedOrRemoved.add(added);
+                }
+            }
+            if (newBeans.isEmpty()) {
+                contributedBeans.remove(className);
+            } else {
+                contributedBeans.put(className, newBeans);
+            }
+            affected.addAll(newBeans);
+            beanTypes.forEach((bean, type) -> {
+                if (className.equals(type)) {
+                    affected.add(bean);
+                }
+            });
+        }
+        affected.addAll(consumers(typesBefore, addedOrRemoved));
+        for (String bean : affected) {
+            if (beanTypes.containsKey(bean)) {
+                rederive(bean);
+            }
+        }
+    }
+
+    /**
+     * @return beans with an injection point whose candidates may have changed because beans were added or removed or
+     *         changed what they can be injected as
+     */
+    private Set<String> consumers(Map<String, Set<String>> typesBefore, Set<String> addedOrRemoved) {
+        Set<String> changedTypes = new HashSet<>();
+        typesBefore.forEach((bean, before) -> {
+            Set<String> after = beanTypes.containsKey(bean) ? assignableTypes(beanTypes.get(bean)) : Collections.emptySet();
+            before.stream().filter(type -> !after.contains(type)).forEach(changedTypes::add);
+            after.stream().filter(type -> !before.contains(type)).forEach(changedTypes::add);
+        });
+        for (String bean : addedOrRemoved) {
+            if (beanTypes.containsKey(bean)) {
+                changedTypes.addAll(assignableTypes(beanTypes.get(bean)));
+            }
+        }
+        Set<String> consumers = new HashSet<>();
+        if (changedTypes.isEmpty() && addedOrRemoved.isEmpty()) {
+            return consumers;
+        }
+        for (String bean : beanTypes.keySet()) {
+            List<InjectionPoint> injectionPoints = new ArrayList<>();
+            List<String> dependsOn = new ArrayList<>();
+            collect(bean, injectionPoints, dependsOn);
+            for (InjectionPoint injectionPoint : injectionPoints) {
+                if (changedTypes.contains(injectionPoint.type) || addedOrRemoved.contains(injectionPoint.qualifier)) {
+                    consumers.add(bean);
+                }
+            }
+            if (!Collections.disjoint(dependsOn, addedOrRemoved)) {
+                consumers.add(bean);
+            }
+        }
+        return consumers;
+    }
+
+    private String ownBeanName(Set<String> beans) {
+        for (String bean : beans) {
+            if (!factoryClasses.containsKey(bean)) {
+                return bean;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the first annotation that makes component scanning pick up the class, null if there is none
+     */
+    private String stereotype(BeanClassMetadata metadata) {
+        for (String annotation : metadata.annotations.keySet()) {
+            if (isStereotype(annotation, new HashSet<>())) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether the annotation is @Component or is meta-annotated with it, like @Service or @SpringBootApplication
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isStereotype(String annotation, Set<String> seen) {
+        Boolean cached = stereotypes.get(annotation);
+        if (cached != null) {
+            return cached;
+        }
+        if (!seen.add(annotation)) {
+            return false;
+        }
+        boolean stereotype = SCANNED_ANNOTATIONS.contains(annotation);
+        BeanClassMetadata metadata = stereotype ? null : metadata(annotation);
+        if (metadata != null) {
+            for (String metaAnnotation : metadata.annotations.keySet()) {
+                if (isStereotype(metaAnnotation, seen)) {
+                    stereotype = true;
+                    break;
+                }
+            }
+        } else if (!stereotype) {
+            try {
+                Class<?> type = ClassUtils.forName(annotation, classLoader);
+                stereotype = type.isAnnotation() && AnnotationUtils.isAnnotationMetaPresent((Class<? extends Annotation>) type, Component.class);
+            } catch (ClassNotFoundException | LinkageError e) {
+                // not on the classpath, so it can't be what spring scans for either
+            }
+        }
+        stereotypes.put(annotation, stereotype);
+        return stereotype;
+    }
+
+    private void rederive(String bean) {
+        Set<String> deps = derive(bean);
+        if (deps == null) {
+            return;
+        }
+        deps.addAll(extraDependencies.getOrDefault(bean, Collections.emptySet()));
+        dependencies.put(bean, deps);
+    }
+
+    /**
+     * @return the dependencies that follow from the bean's injection points and @DependsOn, null if its class files
+     *         can't be read
+     */
+    private Set<String> derive(String bean) {
+        List<InjectionPoint> injectionPoints = new ArrayList<>();
+        List<String> dependsOn = new ArrayList<>();
+        if (!collect(bean, injectionPoints, dependsOn)) {
+            return null;
+        }
+        Set<String> deps = new TreeSet<>();
+        String factoryClass = factoryClasses.get(bean);
+        if (factoryClass != null) {
+            Set<String> siblings = contributedBeans.getOrDefault(factoryClass, Collections.emptySet());
+            String factoryBean = ownBeanName(siblings);
+            if (factoryBean != null && dependsOnFactoryBean(siblings, factoryBean)) {
+                deps.add(factoryBean);
+            }
+        }
+        injectionPoints.forEach(p -> deps.addAll(resolve(p)));
+        dependsOn.stream().filter(beanTypes::containsKey).forEach(deps::add);
+        deps.remove(bean);
+        return deps;
+    }
+
+    /**
+     * Collects the injection points of the bean: the parameters of its @Bean method, and the fields and methods of its
+     * class and the superclasses that can be read, plus the constructor for beans that aren't made by a @Bean method.
+     *
+     * @return false if the class files that define the bean can't be read
+     */
+    private boolean collect(String bean, List<InjectionPoint> injectionPoints, List<String> dependsOn) {
+        String factoryClass = factoryClasses.get(bean);
+        if (factoryClass != null) {
+            BeanClassMetadata factoryMetadata = metadata(factoryClass);
+            BeanMethod method = factoryMetadata == null ? null : factoryMetadata.getBeanMethod(bean);
+            if (method == null) {
+                return false;
+            }
+            injectionPoints.addAll(method.parameters);
+            dependsOn.addAll(method.dependsOn);
+        }
+        boolean found = false;
+        for (String type = beanTypes.get(bean); type != null; ) {
+            BeanClassMetadata metadata = metadata(type);
+            if (metadata == null) {
+                // e.g. a superclass from a jar; what it injects is among the extra dependencies
+                break;
+            }
+            found = true;
+            injectionPoints.addAll(metadata.injectedFields);
+            injectionPoints.addAll(metadata.injectedMethodParameters);
+            if (factoryClass == null && type.equals(beanTypes.get(bean))) {
+                injectionPoints.addAll(metadata.getConstructorParameters());
+                dependsOn.addAll(metadata.dependsOn);
+            }
+            type = metadata.superClassName;
+        }
+        return factoryClass != null || found;
+    }
+
+    /**
+     * Whether spring registers the configuration bean as a dependency of its @Bean beans depends on the spring version,
+     * so follow what the seeded graph shows.
+     */
+    private boolean dependsOnFactoryBean(Set<String> beans, String factoryBean) {
+        for (String bean : beans) {
+            if (dependencies.getOrDefault(bean, Collections.emptySet()).contains(factoryBean)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Collection<String> resolve(InjectionPoint injectionPoint) {
+        if (injectionPoint.type == null || injectionPoint.wrapped) {
+            // whatever spring reported for these is among the extra dependencies
+            return Collections.emptySet();
+        }
+        if (injectionPoint.qualifier != null && beanTypes.containsKey(injectionPoint.qualifier)) {
+            return Collections.singleton(injectionPoint.qualifier);
+        }
+        List<String> candidates = new ArrayList<>();
+        beanTypes.forEach((bean, type) -> {
+            if (assignableTypes(type).contains(injectionPoint.type)) {
+                candidates.add(bean);
+            }
+        });
+        if (!injectionPoint.multiple && candidates.size() > 1 && injectionPoint.name != null && candidates.contains(injectionPoint.name)) {
+            return Collections.singleton(injectionPoint.name);
+        }
+        return candidates;
+    }
+
+    private Set<String> assignableTypes(String type) {
+        Set<String> types = assignableTypes.get(type);
+        if (types == null) {
+            types = new HashSet<>();
+            collectAssignableTypes(type, types);
+            assignableTypes.put(type, types);
+        }
+        return types;
+    }
+
+    private void collectAssignableTypes(String type, Set<String> types) {
+        if (type == null || !types.add(type)) {
+            return;
+        }
+        BeanClassMetadata metadata = metadata(type);
+        if (metadata != null) {
+            collectAssignableTypes(metadata.superClassName, types);
+            metadata.interfaceNames.forEach(i -> collectAssignableTypes(i, types));
+            return;
+        }
+        try {
+            Class<?> clazz = ClassUtils.forName(type, classLoader);
+            for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+                types.add(c.getName());
+            }
+            ClassUtils.getAllInterfacesForClassAsSet(clazz).forEach(i -> types.add(i.getName()));
+        } catch (ClassNotFoundException | LinkageError e) {
+            // primitives, arrays or classes that no longer exist only match themselves
+        }
+    }
+
+    private BeanClassMetadata metadata(String className) {
+        return metadataCache.computeIfAbsent(className, this::readMetadata).orElse(null);
+    }
+
+    private Optional<BeanClassMetadata> readMetadata(String className) {
+        Path classFile = classFile(className);
+        if (classFile == null) {
+            return Optional.empty();
+        }
+        try (InputStream in = Files.newInputStream(classFile)) {
+            return Optional.of(BeanClassMetadata.read(in));
+        } catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Path classFile(String className) {
+        String relativePath = className.replace('.', '/') + ".class";
+        for (Path directory : classDirectories) {
+            Path classFile = directory.resolve(relativePath);
+            if (Files.isRegularFile(classFile)) {
+                return classFile;
+            }
+        }
+        return null;
+    }
+}
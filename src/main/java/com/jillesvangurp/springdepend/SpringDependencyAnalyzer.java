@@ -4,14 +4,19 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.jillesvangurp.springdepend.json.BeanDependency;
 import com.jillesvangurp.springdepend.json.BeanDependencyStatistic;
+import com.jillesvangurp.springdepend.json.BeanHeapUsage;
+import com.jillesvangurp.springdepend.json.ModuleSuggestion;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.support.AbstractApplicationContext;
 
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
 import java.util.*;
 
 import static java.util.stream.Collectors.toMap;
@@ -60,8 +65,11 @@ public class SpringDependencyAnalyzer {
      * @return map of reverse dependencies for all beans in the context
      */
     public Map<String, Set<String>> getReverseBeanDependencies() {
+        return getReverseBeanDependencies(getBeanDependencies());
+    }
+
+    static Map<String, Set<String>> getReverseBeanDependencies(Map<String, Set<String>> beanDeps) {
         Map<String, Set<String>> reverseBeanDeps = new TreeMap<>();
-        Map<String, Set<String>> beanDeps = getBeanDependencies();
 
         beanDeps.forEach((beanName, deps) -> {
             for (String dep : deps) {
@@ -115,8 +123,11 @@ public class SpringDependencyAnalyzer {
     }
 
     public SimpleGraph<String> getBeanGraph() {
-        Map<String, Set<String>> beanDeps = getBeanDependencies();
-        Map<String, Set<String>> reverseBeanDeps = getReverseBeanDependencies();
+        return getBeanGraph(getBeanDependencies());
+    }
+
+    static SimpleGraph<String> getBeanGraph(Map<String, Set<String>> beanDeps) {
+        Map<String, Set<String>> reverseBeanDeps = getReverseBeanDependencies(beanDeps);
 
         SimpleGraph<String> graph = new SimpleGraph<>();
 
@@ -133,6 +144,35 @@ public class SpringDependencyAnalyzer {
         return graph;
     }
 
+    /**
+     * Clusters the bean dependency graph into groups with high internal and low external coupling. These are candidates
+     * for splitting off into lazily loaded child contexts.
+     *
+     * @return module suggestions with the cut edges each split creates and the beans it would save at startup
+     */
+    public List<ModuleSuggestion> getModuleSuggestions() {
+        return new BeanClusterer(getBeanDependencies(), getReverseBeanDependencies()).getModuleSuggestions();
+    }
+
+    /**
+     * Estimates how much heap each singleton bean holds on to by walking its object graph. The total retained size
+     * includes everything retained by the bean's transitive dependencies, which shows which part of the graph owns the
+     * memory. See {@link HeapEstimator} for how sizes are approximated.
+     *
+     * @return map of heap usage for all singleton beans in the context
+     */
+    public Map<String, BeanHeapUsage> getBeanHeapUsage() {
+        ConfigurableListableBeanFactory factory = context.getBeanFactory();
+        Map<String, Object> singletons = new HashMap<>();
+        for (String beanName : factory.getSingletonNames()) {
+            Object singleton = factory.getSingleton(beanName);
+            if (singleton != null) {
+                singletons.put(beanName, singleton);
+            }
+        }
+        return new HeapEstimator(singletons, getBeanDependencies(), o -> o instanceof BeanFactory).estimate();
+    }
+
     private static List<Class<?>> getConfigurationImportsFor(Class<?> clazz) {
         List<Class<?>> list = new ArrayList<>();
         for (Annotation annotation : clazz.getAnnotations()) {
@@ -186,24 +226,91 @@ public class SpringDependencyAnalyzer {
         getBeanGraph().getLayers().forEach((layer, classes) -> {
             System.err.println("" + layer + "\t" + StringUtils.join(classes, ','));
         });
+
+        System.err.println("\n\nModule suggestions:\n");
+        getModuleSuggestions().forEach(suggestion -> {
+            System.err.println("saves " + suggestion.getStartupBeansSaved() + " startup beans\t" + StringUtils.join(suggestion.getBeanNames(), ','));
+            System.err.println("\tincoming: " + StringUtils.join(suggestion.getIncomingCutEdges(), ','));
+            System.err.println("\toutgoing: " + StringUtils.join(suggestion.getOutgoingCutEdges(), ','));
+        });
+
+        System.err.println("\n\nRetained heap (shallow/retained/including dependencies, objects that could not be read):\n");
+        getBeanHeapUsage().entrySet().stream()
+                .sorted((o1, o2) -> o2.getValue().getTotalRetainedSize().compareTo(o1.getValue().getTotalRetainedSize()))
+                .forEach(entry -> {
+                    BeanHeapUsage usage = entry.getValue();
+                    System.err.println(entry.getKey() + ": " + usage.getShallowSize() + "/" + usage.getRetainedSize() + "/" + usage.getTotalRetainedSize() + ", " + usage.getUnreadableObjectCount());
+                });
+    }
+
+    /**
+     * Circular dependencies are found by following dependencies up to four beans deep.
+     *
+     * @return map of bean name to descriptions of the dependency cycles the bean is part of, like bean1-bean2-bean1
+     */
+    public Map<String, Set<String>> getCircularDependencies() {
+        return getCircularDependencies(getBeanDependencies());
+    }
+
+    static Map<String, Set<String>> getCircularDependencies(Map<String, Set<String>> beanDependencies) {
+        Map<String, Set<String>> circularDependencies = new TreeMap<>();
+        beanDependencies.forEach((name, dependencies) -> {
+            Set<String> circularDependencyDescriptions = new HashSet<>();
+            findCycleDependencies(circularDependencyDescriptions, beanDependencies, dependencies, new LinkedHashSet<>(), name, 0, 4);
+            circularDependencies.put(name, circularDependencyDescriptions);
+        });
+        return circularDependencies;
+    }
+
+    /**
+     * @return immutable snapshot of the current analysis that can be queried from many threads, e.g. by the {@link DependencyQueryServer}
+     */
+    public AnalysisSnapshot createSnapshot() {
+        return createSnapshot(getBeanDependencies());
+    }
+
+    static AnalysisSnapshot createSnapshot(Map<String, Set<String>> beanDependencies) {
+        return new AnalysisSnapshot(beanDependencies, getReverseBeanDependencies(beanDependencies), getCircularDependencies(beanDependencies), getBeanGraph(beanDependencies).getLayers());
+    }
+
+    /**
+     * Starts watching compiled class directories and pushes a fresh snapshot to the listener whenever classes change,
+     * without refreshing the context. See {@link DependencyWatcher}.
+     *
+     * @param classDirectories output directories of the compiler, e.g. target/classes
+     * @param listener called on the watcher thread with the updated snapshot
+     * @return the started watcher; close it to stop watching
+     * @throws IOException if the directories can't be watched
+     */
+    public DependencyWatcher watch(List<Path> classDirectories, DependencyWatchListener listener) throws IOException {
+        DependencyWatcher watcher = new DependencyWatcher(new IncrementalBeanGraph(context.getBeanFactory(), classDirectories), classDirectories, DependencyWatcher.DEFAULT_DEBOUNCE_MILLIS, listener);
+        watcher.start();
+        return watcher;
     }
 
     public String getCircularDependencyStatisticJson() {
 
         Map<String, Set<String>> beanDependencies = getBeanDependencies();
+        Map<String, Set<String>> circularDependencies = getCircularDependencies(beanDependencies);
+        Map<String, BeanHeapUsage> beanHeapUsage = getBeanHeapUsage();
         LinkedHashMap<String, BeanDependency> map = new LinkedHashMap<>();
         beanDependencies.forEach((name, dependencies) -> {
-            Set<String> circularDependencyDescriptions = new HashSet<>();
-            findCycleDependencies(circularDependencyDescriptions, beanDependencies, dependencies, new LinkedHashSet<>(), name, 0, 4);
-            map.put(name, new BeanDependency(dependencies.size(),
+            Set<String> circularDependencyDescriptions = circularDependencies.get(name);
+            BeanDependency beanDependency = new BeanDependency(dependencies.size(),
                     new ArrayList<>(dependencies),
                     circularDependencyDescriptions.size(),
-                    new ArrayList<>(circularDependencyDescriptions)));
+                    new ArrayList<>(circularDependencyDescriptions));
+            beanDependency.setHeapUsage(beanHeapUsage.get(name));
+            map.put(name, beanDependency);
         });
         int count = 0;
         for (Map.Entry<String, BeanDependency> stringBeanDependencyEntry : map.entrySet()) {
             count = count + stringBeanDependencyEntry.getValue().getCircularDependencyCount();
         }
+        long retainedSize = 0;
+        for (BeanHeapUsage usage : beanHeapUsage.values()) {
+            retainedSize = retainedSize + usage.getRetainedSize();
+        }
         LinkedHashMap<String, BeanDependency> collect = map.entrySet().stream().sorted((o1, o2) -> {
             BeanDependency value1 = o1.getValue();
             BeanDependency value2 = o2.getValue();
@@ -215,13 +322,14 @@ public class SpringDependencyAnalyzer {
         beanDependencyStatistic.setCreateDate(new Date());
         beanDependencyStatistic.setDependencyMap(collect);
         beanDependencyStatistic.setAllBeanCircularDependencyCount(count);
+        beanDependencyStatistic.setAllBeanRetainedSize(retainedSize);
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
         String result = gson.toJson(beanDependencyStatistic);
         return result;
     }
 
 
-    private void findCycleDependencies(Set<String> circularDependencyDescriptions, Map<String, Set<String>> allBeansDependenciesMap, Set<String> dependecies, Set<String> dependencyNameChain, String targetName, int currentDepth, int maxDepth) {
+    private static void findCycleDependencies(Set<String> circularDependencyDescriptions, Map<String, Set<String>> allBeansDependenciesMap, Set<String> dependecies, Set<String> dependencyNameChain, String targetName, int currentDepth, int maxDepth) {
         currentDepth++;
         int stepDepthValue = currentDepth;
         for (String dep : dependecies) {
@@ -7,6 +7,7 @@ public class BeanDependency {
     private List<String> injectedBeanNames;
     private Integer circularDependencyCount;
     private List<String> circularDependencyDescriptions;
+    private BeanHeapUsage heapUsage;
 
     public BeanDependency() {
     }
@@ -49,4 +50,12 @@ public class BeanDependency {
     public void setCircularDependencyDescriptions(List<String> circularDependencyDescriptions) {
         this.circularDependencyDescriptions = circularDependencyDescriptions;
     }
+
+    public BeanHeapUsage getHeapUsage() {
+        return heapUsage;
+    }
+
+    public void setHeapUsage(BeanHeapUsage heapUsage) {
+        this.heapUsage = heapUsage;
+    }
 }
@@ -7,6 +7,7 @@ public class BeanDependencyStatistic {
 
     private Date createDate;
     private Integer allBeanCircularDependencyCount;
+    private Long allBeanRetainedSize;
     private Map<String, BeanDependency> dependencyMap;
 
     public Date getCreateDate() {
@@ -25,6 +26,14 @@ public class BeanDependencyStatistic {
         this.allBeanCircularDependencyCount = allBeanCircularDependencyCount;
     }
 
+    public Long getAllBeanRetainedSize() {
+        return allBeanRetainedSize;
+    }
+
+    public void setAllBeanRetainedSize(Long allBeanRetainedSize) {
+        this.allBeanRetainedSize = allBeanRetainedSize;
+    }
+
     public Map<String, BeanDependency> getDependencyMap() {
         return dependencyMap;
     }
@@ -0,0 +1,50 @@
+package com.jillesvangurp.springdepend.json;
+
+public class BeanHeapUsage {
+    private Long shallowSize;
+    private Long retainedSize;
+    private Long totalRetainedSize;
+    private Long unreadableObjectCount;
+
+    public BeanHeapUsage() {
+    }
+
+    public BeanHeapUsage(Long shallowSize, Long retainedSize, Long totalRetainedSize, Long unreadableObjectCount) {
+        this.shallowSize = shallowSize;
+        this.retainedSize = retainedSize;
+        this.totalRetainedSize = totalRetainedSize;
+        this.unreadableObjectCount = unreadableObjectCount;
+    }
+
+    public Long getShallowSize() {
+        return shallowSize;
+    }
+
+    public void setShallowSize(Long shallowSize) {
+        this.shallowSize = shallowSize;
+    }
+
+    public Long getRetainedSize() {
+        return retainedSize;
+    }
+
+    public void setRetainedSize(Long retainedSize) {
+        this.retainedSize = retainedSize;
+    }
+
+    public Long getTotalRetainedSize() {
+        return totalRetainedSize;
+    }
+
+    public void setTotalRetainedSize(Long totalRetainedSize) {
+        this.totalRetainedSize = totalRetainedSize;
+    }
+
+    public Long getUnreadableObjectCount() {
+        return unreadableObjectCount;
+    }
+
+    public void setUnreadableObjectCount(Long unreadableObjectCount) {
+        this.unreadableObjectCount = unreadableObjectCount;
+    }
+}
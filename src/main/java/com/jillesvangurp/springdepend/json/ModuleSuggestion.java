@@ -0,0 +1,62 @@
+package com.jillesvangurp.springdepend.json;
+
+import java.util.List;
+
+public class ModuleSuggestion {
+    private List<String> beanNames;
+    private Integer internalDependencyCount;
+    private List<String> incomingCutEdges;
+    private List<String> outgoingCutEdges;
+    private Integer startupBeansSaved;
+
+    public ModuleSuggestion() {
+    }
+
+    public ModuleSuggestion(List<String> beanNames, Integer internalDependencyCount, List<String> incomingCutEdges, List<String> outgoingCutEdges, Integer startupBeansSaved) {
+        this.beanNames = beanNames;
+        this.internalDependencyCount = internalDependencyCount;
+        this.incomingCutEdges = incomingCutEdges;
+        this.outgoingCutEdges = outgoingCutEdges;
+        this.startupBeansSaved = startupBeansSaved;
+    }
+
+    public List<String> getBeanNames() {
+        return beanNames;
+    }
+
+    public void setBeanNames(List<String> beanNames) {
+        this.beanNames = beanNames;
+    }
+
+    public Integer getInternalDependencyCount() {
+        return internalDependencyCount;
+    }
+
+    public void setInternalDependencyCount(Integer internalDependencyCount) {
+        this.internalDependencyCount = internalDependencyCount;
+    }
+
+    public List<String> getIncomingCutEdges() {
+        return incomingCutEdges;
+    }
+
+    public void setIncomingCutEdges(List<String> incomingCutEdges) {
+        this.incomingCutEdges = incomingCutEdges;
+    }
+
+    public List<String> getOutgoingCutEdges() {
+        return outgoingCutEdges;
+    }
+
+    public void setOutgoingCutEdges(List<String> outgoingCutEdges) {
+        this.outgoingCutEdges = outgoingCutEdges;
+    }
+
+    public Integer getStartupBeansSaved() {
+        return startupBeansSaved;
+    }
+
+    public void setStartupBeansSaved(Integer startupBeansSaved) {
+        this.startupBeansSaved = startupBeansSaved;
+    }
+}
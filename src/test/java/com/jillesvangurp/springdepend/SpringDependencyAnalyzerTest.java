@@ -4,7 +4,29 @@ package com.jillesvangurp.springdepend;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.jillesvangurp.springdepend.spring.RootConfig;
+import com.jillesvangurp.springdepend.spring.scan.BeanName;
+import com.jillesvangurp.springdepend.spring.watch.AddedCommon;
+import com.jillesvangurp.springdepend.json.BeanHeapUsage;
+import com.jillesvangurp.springdepend.json.ModuleSuggestion;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Scanner;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.testng.AbstractTestNGSpringContextTests;
@@ -42,4 +64,143 @@ public class SpringDependencyAnalyzerTest extends AbstractTestNGSpringContextTes
         assertThat(circularDependencyStatisticJson).contains("beanName-beanName31-beanName32-beanName");
     }
 
+    public void shouldSuggestModules() {
+        List<ModuleSuggestion> suggestions = analyzer.getModuleSuggestions();
+        for (ModuleSuggestion suggestion : suggestions) {
+            assertThat(suggestion.getStartupBeansSaved()).isGreaterThan(0);
+        }
+
+        ModuleSuggestion cycle = suggestionContaining(suggestions, "beanName");
+        assertThat(cycle.getBeanNames()).containsExactly("beanName", "beanName31", "beanName32");
+        assertThat(cycle.getStartupBeansSaved()).isEqualTo(3);
+        assertThat(cycle.getIncomingCutEdges()).isEmpty();
+        assertThat(cycle.getOutgoingCutEdges()).containsExactly("beanName->beanName11", "beanName->beanName21");
+
+        ModuleSuggestion config1 = suggestionContaining(suggestions, "bean1");
+        assertThat(config1.getBeanNames()).containsExactly("bean1", "bean2");
+        assertThat(config1.getIncomingCutEdges()).containsExactly("bean4->bean1");
+        // bean4 needs bean1 so only bean2 can move to a child context
+        assertThat(config1.getStartupBeansSaved()).isEqualTo(1);
+    }
+
+    private static ModuleSuggestion suggestionContaining(List<ModuleSuggestion> suggestions, String beanName) {
+        for (ModuleSuggestion suggestion : suggestions) {
+            if (suggestion.getBeanNames().contains(beanName)) {
+                return suggestion;
+            }
+        }
+        throw new AssertionError("no suggestion contains " + beanName);
+    }
+
+    public void shouldEstimateHeapUsage() {
+        Map<String, BeanHeapUsage> heapUsage = analyzer.getBeanHeapUsage();
+        BeanHeapUsage bean5 = heapUsage.get("bean5");
+        assertThat(bean5.getShallowSize()).isGreaterThan(0L);
+        assertThat(bean5.getRetainedSize()).isGreaterThanOrEqualTo(bean5.getShallowSize());
+        // bean5 depends on bean4, so its total includes what bean4 retains
+        assertThat(bean5.getTotalRetainedSize()).isGreaterThanOrEqualTo(bean5.getRetainedSize() + heapUsage.get("bean4").getRetainedSize());
+        assertThat(analyzer.getCircularDependencyStatisticJson()).contains("allBeanRetainedSize", "totalRetainedSize");
+    }
+
+    public void shouldWalkThroughWrappers() {
+        Map<String, Object> singletons = new HashMap<>();
+        singletons.put("atomic", new AtomicReference<>(cache()));
+        singletons.put("optional", Optional.of(cache()));
+
+        Map<String, BeanHeapUsage> heapUsage = new HeapEstimator(singletons, Collections.emptyMap(), o -> false).estimate();
+        for (String bean : singletons.keySet()) {
+            // each entry takes well over 32 bytes with its key and value strings
+            assertThat(heapUsage.get(bean).getRetainedSize()).isGreaterThan(32000L);
+            assertThat(heapUsage.get(bean).getUnreadableObjectCount()).isEqualTo(0L);
+        }
+
+        AtomicInteger initialized = new AtomicInteger();
+        ThreadLocal<Map<String, String>> threadLocal = ThreadLocal.withInitial(() -> {
+            initialized.incrementAndGet();
+            return cache();
+        });
+        heapUsage = new HeapEstimator(Collections.singletonMap("threadLocal", threadLocal), Collections.emptyMap(), o -> false).estimate();
+        assertThat(initialized.get()).isEqualTo(0);
+        assertThat(heapUsage.get("threadLocal").getUnreadableObjectCount()).isEqualTo(1L);
+    }
+
+    private static Map<String, String> cache() {
+        Map<String, String> cache = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        return cache;
+    }
+
+    public void shouldFindShortestPath() {
+        AnalysisSnapshot snapshot = analyzer.createSnapshot();
+        assertThat(snapshot.getShortestPath("bean5", "bean1")).containsExactly("bean5", "bean4", "bean1");
+        assertThat(snapshot.getCycles("bean7")).contains("bean7-bean6-bean7");
+    }
+
+    public void shouldServeQueries() throws IOException {
+        DependencyQueryServer server = new DependencyQueryServer(analyzer, 0);
+        server.start();
+        try {
+            URL url = new URL("http://localhost:" + server.getAddress().getPort() + "/dependencies?bean=bean4");
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            assertThat(connection.getResponseCode()).isEqualTo(200);
+            String etag = connection.getHeaderField("ETag");
+            try (InputStream in = connection.getInputStream(); Scanner scanner = new Scanner(in, "UTF-8")) {
+                assertThat(scanner.useDelimiter("\\A").next()).contains("bean1", "bean3");
+            }
+
+            HttpURLConnection poll = (HttpURLConnection) url.openConnection();
+            poll.setRequestProperty("If-None-Match", etag);
+            assertThat(poll.getResponseCode()).isEqualTo(304);
+
+            URL malformed = new URL("http://localhost:" + server.getAddress().getPort() + "/dependencies?bean=%zz");
+            assertThat(((HttpURLConnection) malformed.openConnection()).getResponseCode()).isEqualTo(400);
+        } finally {
+            server.stop();
+        }
+    }
+
+    public void shouldReanalyzeChangedClasses() throws Exception {
+        Path testClasses = Paths.get(RootConfig.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Path classDirectory = Files.createTempDirectory("spring-depend");
+        Path scanPackage = classDirectory.resolve(BeanName.class.getPackage().getName().replace('.', '/'));
+        Files.createDirectories(scanPackage);
+        for (String className : new String[] {"BeanName", "BeanName31", "BeanName32", "BeanNameCollector"}) {
+            Files.copy(testClasses.resolve(BeanName.class.getPackage().getName().replace('.', '/')).resolve(className + ".class"), scanPackage.resolve(className + ".class"));
+        }
+
+        BlockingQueue<AnalysisSnapshot> snapshots = new LinkedBlockingQueue<>();
+        try (DependencyWatcher watcher = analyzer.watch(Collections.singletonList(classDirectory), (snapshot, changedClasses) -> snapshots.add(snapshot))) {
+            Files.delete(scanPackage.resolve("BeanName32.class"));
+            AnalysisSnapshot snapshot = snapshots.poll(30, TimeUnit.SECONDS);
+            assertThat(snapshot).isNotNull();
+            assertThat(snapshot.containsBean("beanName32")).isFalse();
+            assertThat(snapshot.getCycles("beanName")).doesNotContain("beanName-beanName31-beanName32-beanName");
+
+            // rewriting an unchanged class must derive the same dependencies spring found
+            byte[] bytes = Files.readAllBytes(scanPackage.resolve("BeanName.class"));
+            Files.write(scanPackage.resolve("BeanName.class"), bytes);
+            snapshot = snapshots.poll(30, TimeUnit.SECONDS);
+            assertThat(snapshot).isNotNull();
+            assertThat(snapshot.getDependencies("beanName")).containsExactlyElementsOf(analyzer.getBeanDependencies().get("beanName"));
+
+            // same for a custom stereotype, @DependsOn, collection injection and optional and object provider injection, which
+            // spring doesn't register
+            bytes = Files.readAllBytes(scanPackage.resolve("BeanNameCollector.class"));
+            Files.write(scanPackage.resolve("BeanNameCollector.class"), bytes);
+            snapshot = snapshots.poll(30, TimeUnit.SECONDS);
+            assertThat(snapshot).isNotNull();
+            assertThat(snapshot.getDependencies("beanNameCollector")).containsExactly("beanName13", "beanNameCommon");
+            assertThat(snapshot.getDependencies("beanNameCollector")).containsExactlyElementsOf(analyzer.getBeanDependencies().get("beanNameCollector"));
+
+            // a new candidate for the collections must show up in the beans injecting them
+            Path watchPackage = classDirectory.resolve(AddedCommon.class.getPackage().getName().replace('.', '/'));
+            Files.createDirectories(watchPackage);
+            Files.copy(testClasses.resolve(AddedCommon.class.getName().replace('.', '/') + ".class"), watchPackage.resolve("AddedCommon.class"));
+            snapshot = snapshots.poll(30, TimeUnit.SECONDS);
+            assertThat(snapshot).isNotNull();
+            assertThat(snapshot.getDependencies("beanNameCollector")).containsExactly("addedCommon", "beanName13", "beanNameCommon");
+        }
+    }
 }
@@ -0,0 +1,29 @@
+package com.jillesvangurp.springdepend.spring.scan;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+
+@Collector
+@DependsOn("beanName13")
+public class BeanNameCollector {
+    // generic injection points, which the class file only describes in their signatures
+    @Autowired
+    List<BeanNameCommon> list;
+
+    @Autowired
+    Map<String, BeanNameCommon> map;
+
+    @Autowired
+    BeanNameCommon[] array;
+
+    @Autowired
+    Optional<BeanName13> optional;
+
+    @Autowired
+    ObjectProvider<BeanName23> provider;
+}
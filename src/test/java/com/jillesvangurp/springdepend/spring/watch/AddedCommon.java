@@ -0,0 +1,10 @@
+package com.jillesvangurp.springdepend.spring.watch;
+
+import org.springframework.stereotype.Component;
+
+import com.jillesvangurp.springdepend.spring.scan.BeanNameCommon;
+
+@Component
+public class AddedCommon extends BeanNameCommon {
+    // not scanned; the watch test adds it to a class directory
+}